@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2024, Project-K
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package jp.mydns.projectk.vfs.ftp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.net.ftp.FTPClientConfig;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
+import org.apache.commons.net.ftp.parser.DefaultFTPFileEntryParserFactory;
+import org.apache.commons.net.ftp.parser.FTPFileEntryParserFactory;
+
+/**
+ * The {@code FTPFileEntryParserFactory} that detects the entry parser from the listing itself.
+ * <p>
+ * It is used when {@code ftp:entryParser} is {@value FtpEntryParser#AUTO}. Candidate parsers are tried against the
+ * first listing of a connection, and the one that parses the most entries is kept for that connection. A candidate
+ * that parses the whole listing is memoised by this factory. Later connections check the head of their listing
+ * against the memoised parsers, most recently used first, and keep the first that matches without re-probing. Because
+ * the server system key is not used, the {@code SYST} command is not sent. Any other key is delegated to
+ * {@link DefaultFTPFileEntryParserFactory}.
+ * <p>
+ * An instance is created for each {@link FtpEntryParser} applied to {@code FileSystemOptions}, so that the memo is
+ * scoped to the file systems created with those options. All instances are equal to each other, so that equal
+ * {@code FileSystemOptions} still resolve to the same file system.
+ * <p>
+ * Implementation requirements.
+ * <ul>
+ * <li>This class is thread-safe.</li>
+ * </ul>
+ *
+ * @author riru
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class FtpAutoDetectEntryParserFactory implements FTPFileEntryParserFactory {
+
+    private static final List<String> CANDIDATES = List.of(FTPClientConfig.SYST_UNIX, FTPClientConfig.SYST_NT,
+            FTPClientConfig.SYST_OS400, FTPClientConfig.SYST_OS2, FTPClientConfig.SYST_NETWARE,
+            FTPClientConfig.SYST_MACOS_PETER);
+
+    private final FTPFileEntryParserFactory delegate = new DefaultFTPFileEntryParserFactory();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final LongAdder probes = new LongAdder();
+    private volatile List<String> memoised = List.of();
+
+    /**
+     * Constructor.
+     *
+     * @since 1.0.0
+     */
+    public FtpAutoDetectEntryParserFactory() {
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.0
+     */
+    @Override
+    public FTPFileEntryParser createFileEntryParser(String key) {
+
+        return FtpEntryParser.AUTO.equals(key)
+                ? new AutoDetectEntryParser(new FTPClientConfig(key))
+                : delegate.createFileEntryParser(key);
+
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if {@code config} is {@code null}
+     * @since 1.0.0
+     */
+    @Override
+    public FTPFileEntryParser createFileEntryParser(FTPClientConfig config) {
+
+        Objects.requireNonNull(config);
+
+        return FtpEntryParser.AUTO.equals(config.getServerSystemKey())
+                ? new AutoDetectEntryParser(config)
+                : delegate.createFileEntryParser(config);
+
+    }
+
+    /**
+     * Returns the rate of entries that could not be parsed, per parser key.
+     * <p>
+     * Only the entries parsed by the parser selected for a connection are counted; trial parses while probing are
+     * not. Entries parsed while no parser is selected are counted under {@value FtpEntryParser#AUTO}, so a listing
+     * that no candidate understands is reported as failures. The rate is in the range of 0.0 to 1.0.
+     *
+     * @return the parse failure rates. This value is unmodifiable.
+     * @since 1.0.0
+     */
+    public Map<String, Double> getParseFailureRates() {
+
+        Map<String, Double> rates = new HashMap<>();
+
+        counters.forEach((k, v) -> {
+
+            long total = v.attempts.sum();
+
+            if (total > 0) {
+                rates.put(k, (double) v.failures.sum() / total);
+            }
+
+        });
+
+        return Map.copyOf(rates);
+
+    }
+
+    /**
+     * Returns the number of times the candidate parsers have been probed against a listing.
+     *
+     * @return the number of probes
+     * @since 1.0.0
+     */
+    public long getProbeCount() {
+
+        return probes.sum();
+
+    }
+
+    /**
+     * Returns a hash code value.
+     *
+     * @return a hash code value
+     * @since 1.0.0
+     */
+    @Override
+    public int hashCode() {
+
+        return FtpAutoDetectEntryParserFactory.class.hashCode();
+
+    }
+
+    /**
+     * Indicates that other object is equal to this one. The memoised parsers and statistics are not compared.
+     *
+     * @param other an any object
+     * @return {@code true} if equals, otherwise {@code false}.
+     * @since 1.0.0
+     */
+    @Override
+    public boolean equals(Object other) {
+
+        return other instanceof FtpAutoDetectEntryParserFactory;
+
+    }
+
+    private void count(String key, boolean failed) {
+
+        Counter counter = counters.computeIfAbsent(key, k -> new Counter());
+
+        counter.attempts.increment();
+
+        if (failed) {
+            counter.failures.increment();
+        }
+
+    }
+
+    private synchronized void memoise(String key) {
+
+        if (!memoised.isEmpty() && memoised.get(0).equals(key)) {
+            return;
+        }
+
+        List<String> keys = new ArrayList<>(memoised.size() + 1);
+
+        keys.add(key);
+        memoised.stream().filter(k -> !k.equals(key)).forEach(keys::add);
+
+        memoised = List.copyOf(keys);
+
+    }
+
+    private static class Counter {
+
+        final LongAdder attempts = new LongAdder();
+        final LongAdder failures = new LongAdder();
+
+    }
+
+    /**
+     * The entry parser that selects one of the candidate parsers.
+     * <p>
+     * Implementation requirements.
+     * <ul>
+     * <li>This class is not thread-safe. It is used by one connection at a time.</li>
+     * </ul>
+     */
+    private class AutoDetectEntryParser implements FTPFileEntryParser {
+
+        private final FTPClientConfig config;
+        private final Map<String, FTPFileEntryParser> parsers = new HashMap<>();
+        private String selected;
+
+        AutoDetectEntryParser(FTPClientConfig config) {
+
+            this.config = config;
+            this.selected = memoised.isEmpty() ? null : memoised.get(0);
+
+        }
+
+        @Override
+        public FTPFile parseFTPEntry(String entry) {
+
+            if (selected != null) {
+
+                FTPFile file = parserOf(selected).parseFTPEntry(entry);
+
+                count(selected, file == null);
+
+                return file;
+
+            }
+
+            for (String key : CANDIDATES) {
+
+                FTPFile file = parserOf(key).parseFTPEntry(entry);
+
+                if (file != null) {
+                    count(FtpEntryParser.AUTO, false);
+                    selected = key;
+                    return file;
+                }
+
+            }
+
+            count(FtpEntryParser.AUTO, true);
+
+            return null;
+
+        }
+
+        @Override
+        public String readNextEntry(BufferedReader reader) throws IOException {
+
+            return reader.readLine();
+
+        }
+
+        @Override
+        public List<String> preParse(List<String> original) {
+
+            if (original.isEmpty()) {
+                return original;
+            }
+
+            selected = memoised.stream().filter(k -> canParseHead(k, original)).findFirst().orElse(null);
+
+            if (selected != null) {
+                memoise(selected);
+            } else {
+                probe(original);
+            }
+
+            return selected != null ? parserOf(selected).preParse(original) : original;
+
+        }
+
+        private boolean canParseHead(String key, List<String> entries) {
+
+            List<String> prepared = parserOf(key).preParse(new ArrayList<>(entries));
+
+            return prepared.isEmpty() || parserOf(key).parseFTPEntry(prepared.get(0)) != null;
+
+        }
+
+        private void probe(List<String> entries) {
+
+            probes.increment();
+
+            String best = null;
+            int bestCount = 0;
+
+            for (String key : CANDIDATES) {
+
+                List<String> prepared = parserOf(key).preParse(new ArrayList<>(entries));
+
+                int count = 0;
+
+                for (String entry : prepared) {
+                    if (parserOf(key).parseFTPEntry(entry) != null) {
+                        count++;
+                    }
+                }
+
+                if (count > 0 && count == prepared.size()) {
+                    selected = key;
+                    memoise(key);
+                    return;
+                }
+
+                if (count > bestCount) {
+                    best = key;
+                    bestCount = count;
+                }
+
+            }
+
+            selected = best;
+
+        }
+
+        private FTPFileEntryParser parserOf(String key) {
+
+            return parsers.computeIfAbsent(key, k -> delegate.createFileEntryParser(new FTPClientConfig(k,
+                    config.getDefaultDateFormatStr(), config.getRecentDateFormatStr(), config.getServerLanguageCode(),
+                    config.getShortMonthNames(), config.getServerTimeZoneId(), config.isLenientFutureDates(),
+                    config.getUnparseableEntries())));
+
+        }
+    }
+}
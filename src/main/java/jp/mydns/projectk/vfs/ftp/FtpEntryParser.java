@@ -38,6 +38,9 @@ import org.apache.commons.vfs2.provider.ftp.FtpFileSystemConfigBuilder;
 /**
  * The key to the {@code EntryParser}.
  * <p>
+ * If the key is {@value #AUTO}, the entry parser is detected from the listing by
+ * {@link FtpAutoDetectEntryParserFactory} instead of from the reply to the {@code SYST} command.
+ * <p>
  * Implementation requirements.
  * <ul>
  * <li>This class is immutable and thread-safe.</li>
@@ -53,6 +56,13 @@ import org.apache.commons.vfs2.provider.ftp.FtpFileSystemConfigBuilder;
 @FileOption.Name("ftp:entryParser")
 public class FtpEntryParser extends AbstractFileOption {
 
+    /**
+     * The key that detects the entry parser from the listing.
+     *
+     * @since 1.0.0
+     */
+    public static final String AUTO = "AUTO";
+
     private final String value;
 
     /**
@@ -106,7 +116,13 @@ public class FtpEntryParser extends AbstractFileOption {
 
         Objects.requireNonNull(opts);
 
-        FtpFileSystemConfigBuilder.getInstance().setEntryParser(opts, value);
+        FtpFileSystemConfigBuilder builder = FtpFileSystemConfigBuilder.getInstance();
+
+        builder.setEntryParser(opts, value);
+
+        if (AUTO.equals(value)) {
+            builder.setEntryParserFactory(opts, new FtpAutoDetectEntryParserFactory());
+        }
 
     }
 
@@ -36,6 +36,7 @@ module jp.mydns.projectk.vfs.ftp {
     requires jp.mydns.projectk.vfs;
     requires commons.vfs2;
     requires commons.logging;
+    requires transitive org.apache.commons.net;
     requires org.apache.commons.lang3;
     requires jakarta.json;
     uses jp.mydns.projectk.vfs.FileOption.Resolver;
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2024, Project-K
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package jp.mydns.projectk.vfs.ftp;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.net.ftp.FTPClientConfig;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
+import org.apache.commons.net.ftp.parser.UnixFTPEntryParser;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of class FtpAutoDetectEntryParserFactory.
+ *
+ * @author riru
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+class FtpAutoDetectEntryParserFactoryTest {
+
+    private static final List<String> UNIX_LISTING = List.of(
+            "total 8",
+            "-rw-r--r--   1 ftp      ftp          1024 Jan 10  2023 a.txt",
+            "drwxr-xr-x   2 ftp      ftp          4096 Feb 11  2023 dir");
+
+    private static final List<String> WINDOWS_LISTING = List.of(
+            "01-10-23  10:15AM                 1024 a.txt",
+            "02-11-23  11:20AM       <DIR>          dir");
+
+    /**
+     * Test of detecting the UNIX listing.
+     *
+     * @since 1.0.0
+     */
+    @Test
+    void testDetect_Unix() {
+
+        var parser = new FtpAutoDetectEntryParserFactory().createFileEntryParser(FtpEntryParser.AUTO);
+
+        assertThat(parseAll(parser, UNIX_LISTING)).extracting(FTPFile::getName).containsExactly("a.txt", "dir");
+
+    }
+
+    /**
+     * Test of detecting the Windows listing.
+     *
+     * @since 1.0.0
+     */
+    @Test
+    void testDetect_Windows() {
+
+        var parser = new FtpAutoDetectEntryParserFactory()
+                .createFileEntryParser(new FTPClientConfig(FtpEntryParser.AUTO));
+
+        assertThat(parseAll(parser, WINDOWS_LISTING)).extracting(FTPFile::getName).containsExactly("a.txt", "dir");
+
+    }
+
+    /**
+     * Test that later parsers reuse the detected parser without probing, and re-probe if it no longer matches.
+     *
+     * @since 1.0.0
+     */
+    @Test
+    void testMemoise() {
+
+        var factory = new FtpAutoDetectEntryParserFactory();
+
+        parseAll(factory.createFileEntryParser(FtpEntryParser.AUTO), WINDOWS_LISTING);
+
+        assertThat(factory.getProbeCount()).isEqualTo(1);
+
+        parseAll(factory.createFileEntryParser(FtpEntryParser.AUTO), WINDOWS_LISTING);
+
+        assertThat(factory.getProbeCount()).isEqualTo(1);
+        assertThat(factory.getParseFailureRates()).containsExactly(entry(FTPClientConfig.SYST_NT, 0.0));
+
+        assertThat(parseAll(factory.createFileEntryParser(FtpEntryParser.AUTO), UNIX_LISTING))
+                .extracting(FTPFile::getName).containsExactly("a.txt", "dir");
+
+        assertThat(factory.getProbeCount()).isEqualTo(2);
+
+        parseAll(factory.createFileEntryParser(FtpEntryParser.AUTO), UNIX_LISTING);
+
+        assertThat(factory.getProbeCount()).isEqualTo(2);
+        assertThat(factory.getParseFailureRates())
+                .containsOnly(entry(FTPClientConfig.SYST_NT, 0.0), entry(FTPClientConfig.SYST_UNIX, 0.0));
+
+    }
+
+    /**
+     * Test that a candidate that parses only part of the listing is not preferred by later parsers.
+     *
+     * @since 1.0.0
+     */
+    @Test
+    void testMemoise_PartialMatch() {
+
+        var factory = new FtpAutoDetectEntryParserFactory();
+
+        List<String> garbled = new ArrayList<>(UNIX_LISTING);
+        garbled.add("garbled entry");
+
+        assertThat(parseAll(factory.createFileEntryParser(FtpEntryParser.AUTO), garbled))
+                .extracting(FTPFile::getName).containsExactly("a.txt", "dir");
+
+        parseAll(factory.createFileEntryParser(FtpEntryParser.AUTO), UNIX_LISTING);
+
+        assertThat(factory.getProbeCount()).isEqualTo(2);
+
+    }
+
+    /**
+     * Test that listings of different formats alternating on the same factory stop being probed once both are known.
+     *
+     * @since 1.0.0
+     */
+    @Test
+    void testMemoise_Alternate() {
+
+        var factory = new FtpAutoDetectEntryParserFactory();
+
+        parseAll(factory.createFileEntryParser(FtpEntryParser.AUTO), UNIX_LISTING);
+        parseAll(factory.createFileEntryParser(FtpEntryParser.AUTO), WINDOWS_LISTING);
+
+        assertThat(factory.getProbeCount()).isEqualTo(2);
+
+        for (int i = 0; i < 3; i++) {
+
+            assertThat(parseAll(factory.createFileEntryParser(FtpEntryParser.AUTO), UNIX_LISTING))
+                    .extracting(FTPFile::getName).containsExactly("a.txt", "dir");
+
+            assertThat(parseAll(factory.createFileEntryParser(FtpEntryParser.AUTO), WINDOWS_LISTING))
+                    .extracting(FTPFile::getName).containsExactly("a.txt", "dir");
+
+        }
+
+        assertThat(factory.getProbeCount()).isEqualTo(2);
+
+    }
+
+    /**
+     * Test of the parse failure rates.
+     *
+     * @since 1.0.0
+     */
+    @Test
+    void testGetParseFailureRates() {
+
+        var factory = new FtpAutoDetectEntryParserFactory();
+
+        assertThat(factory.getParseFailureRates()).isEmpty();
+
+        var parser = factory.createFileEntryParser(FtpEntryParser.AUTO);
+
+        parseAll(parser, UNIX_LISTING);
+        parser.parseFTPEntry("unparseable");
+
+        assertThat(factory.getParseFailureRates()).containsExactly(entry(FTPClientConfig.SYST_UNIX, 1.0 / 3));
+
+    }
+
+    /**
+     * Test of the parse failure rates. If no candidate understands the listing.
+     *
+     * @since 1.0.0
+     */
+    @Test
+    void testGetParseFailureRates_Unparseable() {
+
+        var factory = new FtpAutoDetectEntryParserFactory();
+
+        assertThat(parseAll(factory.createFileEntryParser(FtpEntryParser.AUTO), List.of("garbage", "more garbage")))
+                .isEmpty();
+
+        assertThat(factory.getParseFailureRates()).containsExactly(entry(FtpEntryParser.AUTO, 1.0));
+
+    }
+
+    /**
+     * Test {@code equals} method and {@code hashCode} method.
+     *
+     * @since 1.0.0
+     */
+    @Test
+    void testEqualsHashCode() {
+
+        var base = new FtpAutoDetectEntryParserFactory();
+        var same = new FtpAutoDetectEntryParserFactory();
+
+        parseAll(same.createFileEntryParser(FtpEntryParser.AUTO), UNIX_LISTING);
+
+        assertThat(base).hasSameHashCodeAs(same).isEqualTo(same).isNotEqualTo(new Object());
+
+    }
+
+    /**
+     * Test that other keys are delegated to the default factory.
+     *
+     * @since 1.0.0
+     */
+    @Test
+    void testCreateFileEntryParser_OtherKey() {
+
+        assertThat(new FtpAutoDetectEntryParserFactory().createFileEntryParser(FTPClientConfig.SYST_UNIX))
+                .isInstanceOf(UnixFTPEntryParser.class);
+
+    }
+
+    List<FTPFile> parseAll(FTPFileEntryParser parser, List<String> listing) {
+
+        List<FTPFile> files = new ArrayList<>();
+
+        for (String entry : parser.preParse(new ArrayList<>(listing))) {
+
+            FTPFile file = parser.parseFTPEntry(entry);
+
+            if (file != null) {
+                files.add(file);
+            }
+
+        }
+
+        return files;
+
+    }
+}
@@ -29,6 +29,7 @@ import jakarta.json.Json;
 import jakarta.json.JsonValue;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.provider.ftp.FtpFileSystemConfigBuilder;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
 import org.junit.jupiter.api.Test;
@@ -102,6 +103,25 @@ class FtpEntryParserTest {
 
     }
 
+    /**
+     * Test apply method. If key is {@code AUTO}.
+     *
+     * @since 1.0.0
+     */
+    @Test
+    void testApply_Auto() throws FileSystemException {
+
+        FileSystemOptions opts = new FileSystemOptions();
+
+        new FtpEntryParser.Resolver().newInstance(Json.createValue("AUTO")).apply(opts);
+
+        assertThat(extractValue(opts)).isEqualTo("AUTO");
+
+        assertThat(FtpFileSystemConfigBuilder.getInstance().getEntryParserFactory(opts))
+                .isInstanceOf(FtpAutoDetectEntryParserFactory.class);
+
+    }
+
     /**
      * Test {@code equals} method and {@code hashCode} method.
      *